@@ -0,0 +1,66 @@
+package com.idlestar.ratingstar;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.LayoutInflater;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Times the inflation of a {@link RatingStarView} from XML with style="@style/...", with and
+ * without the {@link StarAttributes} cache. Results are logged and reported as instrumentation
+ * status (in ns per view):
+ * <pre>
+ * ./gradlew :ratingstar:connectedAndroidTest
+ * </pre>
+ * The views are inflated on the instrumentation thread, which also checks inflation off the main
+ * thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InflationBenchmark {
+    private static final String TAG = "InflationBenchmark";
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void inflateStyledView() {
+        // the test apk holds both the benchmark layout and the library resources.
+        Context context = InstrumentationRegistry.getContext();
+        LayoutInflater inflater = LayoutInflater.from(context);
+
+        long uncached = measure(inflater, true);
+        long cached = measure(inflater, false);
+        Log.i(TAG, "RatingStarView inflation: uncached = " + uncached + "ns, cached = "
+                + cached + "ns");
+
+        Bundle results = new Bundle();
+        results.putLong("inflation_uncached_ns", uncached);
+        results.putLong("inflation_cached_ns", cached);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    /**
+     * @return average ns per view.
+     */
+    private static long measure(LayoutInflater inflater, boolean clearCache) {
+        long total = 0;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            if (clearCache) {
+                StarAttributes.clearCache();
+            }
+
+            long start = System.nanoTime();
+            inflater.inflate(com.idlestar.ratingstar.test.R.layout.inflation_benchmark, null);
+            long elapsed = System.nanoTime() - start;
+
+            if (i >= WARMUP) {
+                total += elapsed;
+            }
+        }
+        return total / ITERATIONS;
+    }
+}
@@ -0,0 +1,73 @@
+package com.idlestar.ratingstar;
+
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures {@link RatingAggregator#addVote} throughput for 1 thread up to the number of cores.
+ * It stands in for a JMH benchmark, which the Android build of this project can not run.
+ * Results are logged and reported as instrumentation status (in votes per ms per thread count):
+ * <pre>
+ * ./gradlew :ratingstar:connectedAndroidTest
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+public class RatingAggregatorBenchmark {
+    private static final String TAG = "AggregatorBenchmark";
+    private static final int VOTES_PER_THREAD = 1000000;
+
+    @Test
+    public void addVoteThroughput() throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Bundle results = new Bundle();
+
+        // powers of two, then all the cores, which is not a power of two on e.g. 6 core devices.
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            long votesPerMs = measure(threads);
+            Log.i(TAG, "threads = " + threads + ", votes/ms = " + votesPerMs);
+            results.putLong("aggregator_votes_per_ms_" + threads + "_threads", votesPerMs);
+            if (threads >= cores) break;
+        }
+
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    private static long measure(int threadCount) throws InterruptedException {
+        final RatingAggregator aggregator = new RatingAggregator(5);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < VOTES_PER_THREAD; i++) {
+                        aggregator.addVote(i % 6);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedMs = Math.max(1, (System.nanoTime() - begin) / 1000000);
+
+        return (long) threadCount * VOTES_PER_THREAD / elapsedMs;
+    }
+}
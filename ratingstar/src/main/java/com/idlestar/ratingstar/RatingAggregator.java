@@ -0,0 +1,222 @@
+package com.idlestar.ratingstar;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates a stream of votes (whole stars, 0 to starNum) into count, mean and histogram, and
+ * publishes the mean to the bound {@link RatingStarView}s.
+ *
+ * <p>{@link #addVote(int)} is lock-free and can be called from any number of threads: every
+ * thread increments the counters of its own stripe, and the stripes are only summed up when read.
+ * A thread whose increment hits contention moves to another stripe, so two busy threads do not
+ * keep sharing one.
+ * Bound views are updated on the main thread, at most once per frame, and only when the displayed
+ * rating would change.</p>
+ *
+ * NOTE: {@link #bind} and {@link #unbind} must be called on the main thread. Bound views are only
+ * weakly referenced, so a missed unbind does not leak them.
+ */
+public class RatingAggregator {
+    /** 16 longs = 128 bytes, keeps two stripes off the same cache line. */
+    private static final int STRIPE_ALIGN = 16;
+
+    private final int starNum;
+    private final int stripeMask;
+    /** longs used by one stripe, (starNum + 1) buckets rounded up to {@link #STRIPE_ALIGN} */
+    private final int stripeSize;
+    /** stripeCount * stripeSize counters, bucket b of stripe s is at s * stripeSize + b. */
+    private final AtomicLongArray counters;
+
+    private final AtomicBoolean publishPending = new AtomicBoolean();
+    /** created by the first {@link #bind}, votes are not published before any view is bound. */
+    private volatile Handler mainHandler;
+    /** main thread only. */
+    private final ArrayList<WeakReference<RatingStarView>> boundViews = new ArrayList<>();
+
+    /** per thread stripe selector, changed when the thread meets contention. */
+    private final ThreadLocal<int[]> probe = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            // mix all the bits of the id (murmur3 finalizer), so sequential thread ids land on
+            // unrelated stripes. xorshift needs a non zero seed.
+            int h = (int) Thread.currentThread().getId();
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return new int[]{ h == 0 ? 1 : h };
+        }
+    };
+
+    private final Runnable schedulePublish = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(publishCallback);
+        }
+    };
+
+    private final Choreographer.FrameCallback publishCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // clear first, so votes added while publishing schedule another frame.
+            publishPending.set(false);
+            publish();
+        }
+    };
+
+    /**
+     * @param starNum the highest vote, votes are in [0, starNum].
+     */
+    public RatingAggregator(int starNum) {
+        this(starNum, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param starNum the highest vote, votes are in [0, starNum].
+     * @param concurrency expected number of threads adding votes, rounded up to a power of two.
+     */
+    public RatingAggregator(int starNum, int concurrency) {
+        if (starNum <= 0) {
+            throw new IllegalArgumentException("starNum must be positive: " + starNum);
+        }
+
+        int stripeCount = 1;
+        while (stripeCount < concurrency) {
+            stripeCount <<= 1;
+        }
+
+        this.starNum = starNum;
+        this.stripeMask = stripeCount - 1;
+        this.stripeSize = (starNum + STRIPE_ALIGN) / STRIPE_ALIGN * STRIPE_ALIGN;
+        this.counters = new AtomicLongArray(stripeCount * stripeSize);
+    }
+
+    /**
+     * Add one vote. Lock-free, can be called from any thread.
+     * @param stars should be [0, starNum]
+     */
+    public void addVote(int stars) {
+        if (stars < 0 || stars > starNum) {
+            throw new IllegalArgumentException("vote should be in [0, " + starNum + "]: " + stars);
+        }
+
+        int[] threadProbe = probe.get();
+        int index = (threadProbe[0] & stripeMask) * stripeSize + stars;
+        long count = counters.get(index);
+        if (!counters.compareAndSet(index, count, count + 1)) {
+            // contended: rehash this thread to another stripe (xorshift), then count there.
+            int h = threadProbe[0];
+            h ^= h << 13;
+            h ^= h >>> 17;
+            h ^= h << 5;
+            threadProbe[0] = h;
+            counters.incrementAndGet((h & stripeMask) * stripeSize + stars);
+        }
+
+        Handler handler = mainHandler;
+        if (handler != null && publishPending.compareAndSet(false, true)) {
+            handler.post(schedulePublish);
+        }
+    }
+
+    /**
+     * @return vote count for each star value, index is the star value. The sum of stripes is not
+     * an atomic snapshot while votes keep coming in.
+     */
+    public long[] getHistogram() {
+        long[] histogram = new long[starNum + 1];
+        for (int base = 0; base < counters.length(); base += stripeSize) {
+            for (int b = 0; b <= starNum; b++) {
+                histogram[b] += counters.get(base + b);
+            }
+        }
+        return histogram;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (long c : getHistogram()) {
+            count += c;
+        }
+        return count;
+    }
+
+    /**
+     * @return the average vote, 0 if there is no vote yet.
+     */
+    public float getMean() {
+        return mean(getHistogram());
+    }
+
+    private static float mean(long[] histogram) {
+        long count = 0;
+        long sum = 0;
+        for (int b = 0; b < histogram.length; b++) {
+            count += histogram[b];
+            sum += histogram[b] * b;
+        }
+        return count == 0 ? 0f : (float) ((double) sum / count);
+    }
+
+    /**
+     * Keep the view's rating updated with {@link #getMean()}. Main thread only.
+     */
+    public void bind(RatingStarView view) {
+        if (mainHandler == null) {
+            // set before reading the mean: a vote missing the handler is counted in that mean.
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        if (indexOf(view) < 0) {
+            boundViews.add(new WeakReference<>(view));
+            publishTo(view, getMean());
+        }
+    }
+
+    /**
+     * Main thread only.
+     */
+    public void unbind(RatingStarView view) {
+        int index = indexOf(view);
+        if (index >= 0) {
+            boundViews.remove(index);
+        }
+    }
+
+    private int indexOf(RatingStarView view) {
+        for (int i = 0; i < boundViews.size(); i++) {
+            if (boundViews.get(i).get() == view) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void publish() {
+        if (boundViews.isEmpty()) return;
+
+        float mean = getMean();
+        for (int i = boundViews.size() - 1; i >= 0; i--) {
+            RatingStarView view = boundViews.get(i).get();
+            if (view == null) {
+                // collected without unbind.
+                boundViews.remove(i);
+            } else {
+                publishTo(view, mean);
+            }
+        }
+    }
+
+    private static void publishTo(RatingStarView view, float mean) {
+        if (view.getRatingKey(mean) != view.getRatingKey(view.getRating())) {
+            view.setRating(mean);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.idlestar.ratingstar;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders ratings into Bitmaps without creating a View, for places a {@link RatingStarView} can
+ * not be used, such as RemoteViews of app widgets and notifications.
+ *
+ * <p>Bitmaps are memoized by (rating step index, width, height); the style is fixed per renderer.
+ * So updating many widget instances with the same rating costs one draw and some cache lookups.
+ * With {@link RatingStarView#GRANULARITY_CONTINUOUS}, ratings are first rounded to the pixel
+ * column of their fill edge, so there are at most about (star width) entries per star.
+ * A bitmap is never drawn again once returned, evicted ones are left to the GC.</p>
+ *
+ * <p>All methods are thread safe, {@link #render} is meant to be called off the main thread
+ * (e.g. in a widget update job), or use {@link #renderAsync}.</p>
+ *
+ * NOTE: returned bitmaps are shared with later calls for the same rating and size: do not modify
+ * or recycle them.
+ */
+public class RatingStarBitmapRenderer {
+    /**
+     * 5 stars 24dp high on xxhdpi, in ARGB_8888: 72px high, 5 * 76px stars + 4 * 8px margins =
+     * 411px wide, about 118KB.
+     */
+    private static final int TYPICAL_BITMAP_BYTES = 411 * 72 * 4;
+    /** about 1.9MB: the 11 half step ratings of one typical size, and a few of another size. */
+    private static final int DEFAULT_CACHE_BYTES = 16 * TYPICAL_BITMAP_BYTES;
+
+    private static final Executor executor = Executors.newSingleThreadExecutor();
+
+    public interface Callback {
+        /**
+         * Called on the main thread.
+         * @param bitmap the shared bitmap, see {@link RatingStarBitmapRenderer}
+         */
+        void onRendered(Bitmap bitmap);
+    }
+
+    private final StarRenderer renderer;
+    private final int starNum;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Canvas canvas = new Canvas();
+    private final LruCache<Long, Bitmap> cache;
+    private final int maxCacheBytes;
+    /** size of the current {@link #renderer} layout */
+    private int layoutWidth, layoutHeight;
+
+    /**
+     * @param styleRes a style resource holding the rsv_* items, as used by {@link RatingStarView}.
+     */
+    public RatingStarBitmapRenderer(Context context, int styleRes) {
+        this(context, styleRes, DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * @param styleRes a style resource holding the rsv_* items, as used by {@link RatingStarView}.
+     * @param maxCacheBytes max total size of the memoized bitmaps.
+     */
+    public RatingStarBitmapRenderer(Context context, int styleRes, int maxCacheBytes) {
+        StarAttributes a = StarAttributes.obtain(context, styleRes);
+        renderer = new StarRenderer(a);
+        starNum = a.starNum;
+        this.maxCacheBytes = maxCacheBytes;
+        cache = new LruCache<Long, Bitmap>(maxCacheBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Get the bitmap of rating, drawn if not memoized yet. Can be called from any thread.
+     * @param rating should be [0, starNum]
+     * @param width bitmap width in px
+     * @param height bitmap height in px, the star height if width is enough.
+     */
+    public synchronized Bitmap render(float rating, int width, int height) {
+        if (width <= 0 || height <= 0 || width > 0xffff || height > 0xffff) {
+            throw new IllegalArgumentException("invalid size: " + width + "x" + height);
+        }
+
+        if (renderer.getGranularity() == RatingStarView.GRANULARITY_CONTINUOUS) {
+            // the pixel columns depend on the star width, so lay out first.
+            ensureLayout(width, height);
+            rating = renderer.snapToPixels(rating, starNum);
+        }
+
+        int ratingKey = renderer.getRatingKey(rating, starNum);
+        Long key = ((long) ratingKey << 32) | ((long) width << 16) | height;
+
+        Bitmap bitmap = cache.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        ensureLayout(width, height);
+        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        canvas.setBitmap(bitmap);
+        renderer.draw(canvas, rating);
+        canvas.setBitmap(null);
+
+        // a bitmap larger than the whole cache would only be evicted at once.
+        if (bitmap.getByteCount() <= maxCacheBytes) {
+            cache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    private void ensureLayout(int width, int height) {
+        if (width != layoutWidth || height != layoutHeight) {
+            renderer.layout(0, 0, width, height, starNum);
+            layoutWidth = width;
+            layoutHeight = height;
+        }
+    }
+
+    /**
+     * {@link #render} on a background thread, then deliver the result on the main thread.
+     */
+    public void renderAsync(final float rating, final int width, final int height,
+                            final Callback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = render(rating, width, height);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onRendered(bitmap);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drop all memoized bitmaps.
+     */
+    public synchronized void clear() {
+        cache.evictAll();
+    }
+}
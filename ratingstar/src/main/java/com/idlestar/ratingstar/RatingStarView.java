@@ -1,62 +1,64 @@
 package com.idlestar.ratingstar;
 
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.CornerPathEffect;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.RectF;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 
-import java.util.ArrayList;
-
-import static android.graphics.Canvas.CLIP_SAVE_FLAG;
-
 /**
  * RatingStar is specific RatingBar use star drawable as the progress mark.
  *
  * NOTE:
- * Padding will be larger if is {@link #cornerRadius} is set (No exact calc to handle this issue).
+ * Padding will be larger if is {@link #setCornerRadius} is set (No exact calc to handle this issue).
+ *
+ * The constructors only read (cached) attributes and touch no main-thread-only state, so the view
+ * can be created by AsyncLayoutInflater or on any background thread.
+ *
+ * @see RatingStarBitmapRenderer draws the same stars without a View, e.g. for RemoteViews.
  */
 public class RatingStarView extends View implements View.OnClickListener {
     private static final String TAG = "RatingStarView";
     private static final int DEFAULT_STAR_HEIGHT = 32;
-    private float cornerRadius = 4f;
-    private int starForegroundColor = 0xffED4A4B;
-    private int strokeColor = 0xffED4A4B;
-    private int starBackgroundColor = Color.WHITE;
-    /** used to make round smooth star horn */
-    private CornerPathEffect pathEffect;
-    private ArrayList<StarModel> starList;
-    private float rating;
+    /** plain polygon fill: no corner effect, no stroke, no layer. */
+    public static final int LOD_LOW = 0;
+    /** corner effect kept, no stroke. */
+    public static final int LOD_MEDIUM = 1;
+    /** full quality. */
+    public static final int LOD_FULL = 2;
     /**
-     * expected star number.
+     * Default. Draw every star at every frame.
      */
-    private int starNum = 5;
+    public static final int LAYER_POLICY_NONE = 0;
     /**
-     * real drawn star number.
+     * Cache the empty star row in a bitmap, and draw only the full and partial stars at each frame.
+     * The cache costs one view-sized bitmap, and is skipped below {@link #LOD_FULL} where the empty
+     * row is cheap to draw. The view never changes its layer type by itself.
      */
-    private int starCount;
-    /** calculated value */
-    private float starWidth;
-    /** calculated value */
-    private float starHeight;
-    private float starMargin = 8;
-    private float strokeWidth = 2f;
-    private boolean drawStrokeForFullStar;
-    private boolean drawStrokeForHalfStar = true;
-    private boolean drawStrokeForEmptyStar = true;
+    public static final int LAYER_POLICY_AUTO = 1;
+    /** stars are drawn at any fill, computed at every draw. */
+    public static final int GRANULARITY_CONTINUOUS = 0;
+    /** stars are either empty or full. */
+    public static final int GRANULARITY_WHOLE = 1;
+    /** stars are filled by halves, the default. Same as rsv_onlyHalfStar. */
+    public static final int GRANULARITY_HALF = 2;
+    public static final int GRANULARITY_QUARTER = 4;
+    public static final int GRANULARITY_TENTH = 10;
+    /** lays out and draws the stars. */
+    private StarRenderer renderer;
+    private float rating;
+    /**
+     * expected star number.
+     */
+    private int starNum = StarAttributes.DEFAULT_STAR_NUM;
     private boolean enableSelectRating = false;
-    private boolean onlyHalfStar = true;
-    private float starThicknessFactor = StarModel.DEFAULT_THICKNESS;
-    private float dividerX;
+    private int layerPolicy = LAYER_POLICY_NONE;
+    /** the row of empty stars, drawn once for all ratings, see {@link #LAYER_POLICY_AUTO} */
+    private Bitmap backgroundCache;
     private float clickedX, clickedY;
-    private Paint paint;
     private OnClickListener mOuterOnClickListener;
 
     // region constructors
@@ -79,40 +81,22 @@ public class RatingStarView extends View implements View.OnClickListener {
     private void init(AttributeSet attrs, int defStyle) {
         loadAttributes(attrs, defStyle);
 
-        // init paint
-        paint = new Paint();
-        paint.setFlags(Paint.ANTI_ALIAS_FLAG);
-        paint.setStrokeWidth(strokeWidth);
-
-        // properties
-        pathEffect = new CornerPathEffect(cornerRadius);
-
         // click to rate
         super.setOnClickListener(this);
     }
 
     private void loadAttributes(AttributeSet attrs, int defStyle) {
-        final TypedArray a = getContext().obtainStyledAttributes(
-                attrs, R.styleable.RatingStarView, defStyle, 0);
-        strokeColor = a.getColor(R.styleable.RatingStarView_rsv_strokeColor, strokeColor);
-        starForegroundColor = a.getColor(R.styleable.RatingStarView_rsv_starForegroundColor, starForegroundColor);
-        starBackgroundColor = a.getColor(R.styleable.RatingStarView_rsv_starBackgroundColor, starBackgroundColor);
-        cornerRadius = a.getDimension(R.styleable.RatingStarView_rsv_cornerRadius, cornerRadius);
-        starMargin = a.getDimension(R.styleable.RatingStarView_rsv_starMargin, starMargin);
-        strokeWidth = a.getDimension(R.styleable.RatingStarView_rsv_strokeWidth, strokeWidth);
-        starThicknessFactor = a.getFloat(R.styleable.RatingStarView_rsv_starThickness, starThicknessFactor);
-        rating = a.getFloat(R.styleable.RatingStarView_rsv_rating, rating);
-        starNum = a.getInteger(R.styleable.RatingStarView_rsv_starNum, starNum);
-        drawStrokeForEmptyStar = a.getBoolean(R.styleable.RatingStarView_rsv_drawStrokeForEmptyStar, true);
-        drawStrokeForFullStar = a.getBoolean(R.styleable.RatingStarView_rsv_drawStrokeForFullStar, false);
-        drawStrokeForHalfStar = a.getBoolean(R.styleable.RatingStarView_rsv_drawStrokeForHalfStar, true);
-        enableSelectRating = a.getBoolean(R.styleable.RatingStarView_rsv_enableSelectRating, false);
-        onlyHalfStar = a.getBoolean(R.styleable.RatingStarView_rsv_onlyHalfStar, true);
-        a.recycle();
+        final StarAttributes a = StarAttributes.obtain(getContext(), attrs, defStyle);
+        renderer = new StarRenderer(a);
+        rating = a.rating;
+        starNum = a.starNum;
+        enableSelectRating = a.enableSelectRating;
+        layerPolicy = a.layerPolicy;
     }
 
     private void setStarBackgroundColor(int color) {
-        starBackgroundColor = color;
+        renderer.starBackgroundColor = color;
+        invalidateBackground();
         invalidate();
     }
 
@@ -120,14 +104,14 @@ public class RatingStarView extends View implements View.OnClickListener {
      * @see StarModel#setThickness(float)
      */
     public void setStarThickness(float thicknessFactor) {
-        for (StarModel star : starList) {
-            star.setThickness(thicknessFactor);
-        }
+        renderer.setStarThickness(thicknessFactor);
+        invalidateBackground();
         invalidate();
     }
 
     public void setStrokeWidth(float width) {
-        this.strokeWidth = width;
+        renderer.setStrokeWidth(width);
+        invalidateBackground();
         invalidate();
     }
 
@@ -142,12 +126,52 @@ public class RatingStarView extends View implements View.OnClickListener {
         }
     }
 
+    /**
+     * Set the steps a star can be filled by. A partial star is never drawn empty or full, except
+     * for {@link #GRANULARITY_WHOLE} which rounds to the nearest star.
+     * @param granularity one of {@link #GRANULARITY_CONTINUOUS}, {@link #GRANULARITY_WHOLE},
+     * {@link #GRANULARITY_HALF}, {@link #GRANULARITY_QUARTER} and {@link #GRANULARITY_TENTH}.
+     */
+    public void setGranularity(int granularity) {
+        renderer.setGranularity(granularity);
+        invalidate();
+    }
+
+    public int getGranularity() {
+        return renderer.getGranularity();
+    }
+
+    /**
+     * @param policy {@link #LAYER_POLICY_AUTO} or {@link #LAYER_POLICY_NONE}
+     */
+    public void setLayerPolicy(int policy) {
+        if (layerPolicy == policy) return;
+        layerPolicy = policy;
+        if (policy != LAYER_POLICY_AUTO) {
+            invalidateBackground();
+        }
+        invalidate();
+    }
+
+    public int getLayerPolicy() {
+        return layerPolicy;
+    }
+
+    /**
+     * Drop the background row, it is redrawn at next draw. Not recycled, as a frame in flight may
+     * still use it.
+     */
+    private void invalidateBackground() {
+        backgroundCache = null;
+    }
+
     /**
      * Set the smooth of the star's horn.
      * @param cornerRadius corner circle radius
      */
     public void setCornerRadius(float cornerRadius) {
-        this.cornerRadius = cornerRadius;
+        renderer.pathEffect = new CornerPathEffect(cornerRadius);
+        invalidateBackground();
         invalidate();
     }
 
@@ -157,7 +181,7 @@ public class RatingStarView extends View implements View.OnClickListener {
      * @param margin horizontal space
      */
     public void setStarMargin(int margin) {
-        this.starMargin = margin;
+        renderer.starMargin = margin;
         calcStars();
         invalidate();
     }
@@ -177,19 +201,40 @@ public class RatingStarView extends View implements View.OnClickListener {
     }
 
     private void onPaddingChanged() {
-        int left = getPaddingLeft();
-        int top = getPaddingTop();
-        for (StarModel star : starList) {
-            star.moveStarTo(left, top);
-        }
+        renderer.moveStarsTo(getPaddingLeft(), getPaddingTop());
+        invalidateBackground();
     }
 
     public void setDrawStrokeForFullStar(boolean draw) {
-        drawStrokeForFullStar = draw;
+        renderer.drawStrokeForFullStar = draw;
+        invalidateBackground();
     }
 
     public void setDrawStrokeForEmptyStar(boolean draw) {
-        drawStrokeForEmptyStar = draw;
+        renderer.drawStrokeForEmptyStar = draw;
+        invalidateBackground();
+    }
+
+    /**
+     * Set the star heights under which a cheaper drawing is used, see {@link #LOD_LOW} and
+     * {@link #LOD_MEDIUM}. Pass 0 to disable a level.
+     * @param lowStarHeight stars lower than this are drawn as {@link #LOD_LOW}
+     * @param mediumStarHeight stars lower than this are drawn as {@link #LOD_MEDIUM}
+     */
+    public void setLevelOfDetailThresholds(float lowStarHeight, float mediumStarHeight) {
+        renderer.lodLowStarHeight = lowStarHeight;
+        renderer.lodMediumStarHeight = mediumStarHeight;
+        renderer.updateLevelOfDetail();
+        invalidateBackground();
+        invalidate();
+    }
+
+    /**
+     * @return the level of detail selected for the current star height, one of {@link #LOD_LOW},
+     * {@link #LOD_MEDIUM} and {@link #LOD_FULL}.
+     */
+    public int getLevelOfDetail() {
+        return renderer.getLevelOfDetail();
     }
 
     /**
@@ -198,46 +243,11 @@ public class RatingStarView extends View implements View.OnClickListener {
     private void calcStars() {
         int paddingLeft = getPaddingLeft();
         int paddingTop = getPaddingTop();
-        int paddingRight = getPaddingRight();
-        int paddingBottom = getPaddingBottom();
-        int contentWidth = getWidth() - paddingLeft - paddingRight;
-        int contentHeight = getHeight() - paddingTop - paddingBottom;
-
-        int left = paddingLeft;
-        int top = paddingTop;
-
-        // according to the View's height , make star height.
-        int starHeight = contentHeight;
-        if (contentHeight > contentWidth) {
-            starHeight = contentWidth;
-        }
+        int contentWidth = getWidth() - paddingLeft - getPaddingRight();
+        int contentHeight = getHeight() - paddingTop - getPaddingBottom();
 
-        if (starHeight <= 0) return;
-        float startWidth = StarModel.getStarWidth(starHeight);
-
-        // starCount * startWidth + (starCount - 1) * starMargin = contentWidth
-        int starCount = (int) ((contentWidth + starMargin) / (startWidth + starMargin));
-        if (starCount > starNum) {
-            starCount = starNum;
-        }
-
-        this.starHeight = starHeight;
-        this.starWidth = startWidth;
-        Log.d(TAG, "drawing starCount = " + starCount  + ", contentWidth = " + contentWidth
-                + ", startWidth = " + startWidth + ", starHeight = " + starHeight);
-
-        starList = new ArrayList<>(starCount);
-
-        for (int i = 0; i < starCount; i++) {
-            StarModel star = new StarModel(starThicknessFactor);
-            starList.add(star);
-            star.setDrawingOuterRect(left, top, starHeight);
-            left += startWidth + 0.5f + starMargin;
-        }
-
-        this.starCount = starCount;
-        this.starWidth = startWidth;
-        this.starHeight = starHeight;
+        renderer.layout(paddingLeft, paddingTop, contentWidth, contentHeight, starNum);
+        invalidateBackground();
     }
 
     @Override
@@ -246,6 +256,7 @@ public class RatingStarView extends View implements View.OnClickListener {
         int heightMode = MeasureSpec.getMode(heightMeasureSpec);
         int widthSize = MeasureSpec.getSize(widthMeasureSpec);
         int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+        float starMargin = renderer.starMargin;
 
         float width;
         int height; // must have height
@@ -295,145 +306,48 @@ public class RatingStarView extends View implements View.OnClickListener {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        if (starList == null) {
+        if (!renderer.hasStars()) {
             calcStars();
         }
 
-        if (starList == null || starList.size() == 0) {
+        if (layerPolicy != LAYER_POLICY_AUTO || !renderer.hasStars()
+                || renderer.getLevelOfDetail() != LOD_FULL
+                || getWidth() <= 0 || getHeight() <= 0) {
+            renderer.draw(canvas, rating);
             return;
         }
 
-        for (int i = 0; i < starList.size(); i++) {
-            if (rating >= i + 1) {
-                drawFullStar(starList.get(i), canvas);
-            } else {
-                float decimal = rating - i;
-                if (decimal > 0) {
-                    if (onlyHalfStar) {
-                        decimal = 0.5f;
-                    }
-                    drawPartialStar(starList.get(i), canvas, decimal);
-                } else {
-                    drawEmptyStar(starList.get(i), canvas);
-                }
-            }
+        if (backgroundCache == null) {
+            backgroundCache = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
+            renderer.drawEmptyRow(new Canvas(backgroundCache));
         }
-    }
-
-    private void drawFullStar(StarModel star, Canvas canvas) {
-        drawSolidStar(star, canvas, starForegroundColor);
-        if (drawStrokeForFullStar) {
-            drawStarStroke(star, canvas);
+        // the full and partial stars are drawn on the view background, as without the cache: the
+        // empty row is only blitted at the right of them.
+        float emptyLeft = renderer.getEmptyRowLeft(rating);
+        if (emptyLeft < getWidth()) {
+            canvas.save();
+            canvas.clipRect(emptyLeft, 0, getWidth(), getHeight());
+            canvas.drawBitmap(backgroundCache, 0, 0, null);
+            canvas.restore();
         }
+        renderer.drawForeground(canvas, rating);
     }
 
-    private void drawEmptyStar(StarModel star, Canvas canvas) {
-        drawSolidStar(star, canvas, starBackgroundColor);
-        if (drawStrokeForEmptyStar) {
-            drawStarStroke(star, canvas);
-        }
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        invalidateBackground();
     }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
+        invalidateBackground();
         if (h != oldh) {
             calcStars();
         }
     }
 
-    private void drawPartialStar(StarModel star, Canvas canvas, float percent) {
-        Log.d(TAG, "drawPartialStar percent = " + percent);
-        if (percent <= 0) {
-            drawEmptyStar(star, canvas);
-            return;
-        } else if (percent >= 1) {
-            drawFullStar(star, canvas);
-            return;
-        }
-
-        // layer 1
-        drawSolidStar(star, canvas, starBackgroundColor);
-
-        float dividerX = star.getOuterRect().left + star.getOuterRect().width() * percent;
-        this.dividerX = dividerX;
-
-        // layer 2
-        RectF r = star.getOuterRect();
-        canvas.saveLayerAlpha(r.left, r.top, r.right, r.bottom, 0xff, CLIP_SAVE_FLAG);
-        RectF clip = new RectF(star.getOuterRect());
-        clip.right = dividerX;
-        canvas.clipRect(clip);
-        drawSolidStar(star, canvas, starForegroundColor);
-        canvas.restore();
-
-        // layer 1
-        if (drawStrokeForHalfStar) {
-            drawStarStroke(star, canvas);
-        }
-    }
-
-    private void drawSolidStar(StarModel star, Canvas canvas, int fillColor) {
-        paint.setStyle(Paint.Style.FILL_AND_STROKE);
-        paint.setColor(fillColor);
-        paint.setPathEffect(pathEffect);
-
-        VertexF prev = star.getVertex(1);
-        Path path = new Path();
-
-        for (int i = 0; i < 5; i++) {
-            path.rewind();
-            path.moveTo(prev.x, prev.y);
-
-            VertexF next = prev.next;
-
-            path.lineTo(next.x, next.y);
-            path.lineTo(next.next.x, next.next.y);
-            path.lineTo(next.next.x, next.next.y);
-            canvas.drawPath(path, paint);
-
-            prev = next.next;
-        }
-
-        // fill the middle hole. use +1.0 +1.5 because the path-API will leave 1px gap.
-        path.rewind();
-        prev = star.getVertex(1);
-        path.moveTo(prev.x - 1f, prev.y - 1f);
-        prev = prev.next.next;
-        path.lineTo(prev.x + 1.5f, prev.y - 0.5f);
-        prev = prev.next.next;
-        path.lineTo(prev.x + 1.5f, prev.y + 1f);
-        prev = prev.next.next;
-        path.lineTo(prev.x, prev.y + 1f);
-        prev = prev.next.next;
-        path.lineTo(prev.x - 1f, prev.y + 1f);
-
-        paint.setPathEffect(null);
-        canvas.drawPath(path, paint);
-    }
-
-    private void drawStarStroke(StarModel star, Canvas canvas) {
-        paint.setStyle(Paint.Style.STROKE);
-        paint.setColor(strokeColor);
-        paint.setPathEffect(pathEffect);
-        VertexF prev = star.getVertex(1);
-        Path path = new Path();
-
-        for (int i = 0; i < 5; i++) {
-            path.rewind();
-            path.moveTo(prev.x, prev.y);
-
-            VertexF next = prev.next;
-
-            path.lineTo(next.x, next.y);
-            path.lineTo(next.next.x, next.next.y);
-            path.lineTo(next.next.x, next.next.y);
-
-            canvas.drawPath(path, paint);
-            prev = next.next;
-        }
-    }
-
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         if (event.getAction() == MotionEvent.ACTION_DOWN) {
@@ -461,31 +375,32 @@ public class RatingStarView extends View implements View.OnClickListener {
 
     private void changeRatingByClick() {
         int paddingTop = getPaddingTop();
-        if (clickedY < paddingTop || clickedY > paddingTop + starHeight) {
+        if (clickedY < paddingTop || clickedY > paddingTop + renderer.getStarHeight()) {
             return;
         }
 
-        int paddingLeft = getPaddingLeft();
-        float starWidth = this.starWidth;
-        float starMargin = this.starMargin;
-
-        float left = paddingLeft;
-        for (int i = 1; i <= starCount; i++) {
-            float right = left + starWidth;
-            if (clickedX >= left && clickedX <= right) {
-                if (this.rating == i) {
-                    setRating(0);
-                } else {
-                    setRating(i);
-                }
-                break;
-            }
+        int index = renderer.hitTestStar(clickedX);
+        if (index < 0) {
+            return;
+        }
 
-            left += (starWidth + starMargin);
+        int i = index + 1;
+        if (this.rating == i) {
+            setRating(0);
+        } else {
+            setRating(i);
         }
     }
 
     public float getRating() {
         return rating;
     }
+
+    /**
+     * @return a key equal for two ratings only if they are drawn the same, used to skip updates
+     * which change nothing.
+     */
+    int getRatingKey(float rating) {
+        return renderer.getRatingKey(rating, starNum);
+    }
 }
@@ -0,0 +1,60 @@
+package com.idlestar.ratingstar;
+
+/**
+ * Quantizes ratings to the steps they are drawn at, shared by the drawing, {@link RatingAggregator}
+ * and {@link RatingStarBitmapRenderer}. Plain arithmetic, no Android class is used.
+ */
+final class RatingSteps {
+
+    private RatingSteps() {
+    }
+
+    /**
+     * Quantize rating to the step index drawn for it. A partial star never rounds to empty or
+     * full, except for {@link RatingStarView#GRANULARITY_WHOLE} which rounds to nearest.
+     * NaN is drawn as 0.
+     *
+     * @param granularity steps per star, one of the RatingStarView.GRANULARITY_* values.
+     * @return index in [0, starNum * granularity], 0 for
+     * {@link RatingStarView#GRANULARITY_CONTINUOUS}.
+     */
+    static int getStepIndex(float rating, int starNum, int granularity) {
+        int steps = granularity;
+        if (!(rating > 0)) {
+            return 0;
+        }
+        if (rating >= starNum) {
+            return starNum * steps;
+        }
+
+        int whole = (int) rating;
+        float decimal = rating - whole;
+        int stepInStar = Math.round(decimal * steps);
+        if (steps > 1) {
+            if (decimal > 0 && stepInStar < 1) {
+                stepInStar = 1;
+            } else if (stepInStar > steps - 1) {
+                stepInStar = steps - 1;
+            }
+        }
+        return whole * steps + stepInStar;
+    }
+
+    /**
+     * @return a key equal for two ratings only if they are drawn the same: the step index, or the
+     * float bits of the clamped rating for {@link RatingStarView#GRANULARITY_CONTINUOUS}.
+     */
+    static int getRatingKey(float rating, int starNum, int granularity) {
+        if (granularity != RatingStarView.GRANULARITY_CONTINUOUS) {
+            return getStepIndex(rating, starNum, granularity);
+        }
+
+        // NaN and -0f are drawn as 0, and must share its key.
+        if (!(rating > 0)) {
+            rating = 0;
+        } else if (rating > starNum) {
+            rating = starNum;
+        }
+        return Float.floatToIntBits(rating);
+    }
+}
@@ -0,0 +1,206 @@
+package com.idlestar.ratingstar;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.graphics.CornerPathEffect;
+import android.util.AttributeSet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable snapshot of all the {@link R.styleable#RatingStarView} attributes, parsed once and
+ * shared by every {@link RatingStarView} inflated with the same (theme, defStyle, style).
+ *
+ * <p>Only attribute sets that do not declare any rsv_* attribute inline are cached, as inline
+ * values make every instance unique. The cache is guarded by its own lock, so it can be used from
+ * background inflation threads (e.g. AsyncLayoutInflater).</p>
+ *
+ * The key also holds the Resources Configuration, so an Activity handling uiMode or density
+ * changes by itself does not get the values parsed for the old configuration.
+ *
+ * NOTE: a Theme mutated by {@link Resources.Theme#applyStyle} after the first inflation will keep
+ * returning the attributes parsed before the change.
+ */
+class StarAttributes {
+    static final float DEFAULT_CORNER_RADIUS = 4f;
+    static final int DEFAULT_STAR_FOREGROUND_COLOR = 0xffED4A4B;
+    static final int DEFAULT_STROKE_COLOR = 0xffED4A4B;
+    static final int DEFAULT_STAR_BACKGROUND_COLOR = Color.WHITE;
+    static final float DEFAULT_STAR_MARGIN = 8;
+    static final float DEFAULT_STROKE_WIDTH = 2f;
+    static final int DEFAULT_STAR_NUM = 5;
+
+    private static final Map<Resources.Theme, Map<CacheKey, StarAttributes>> cache = new WeakHashMap<>();
+
+    final int strokeColor;
+    final int starForegroundColor;
+    final int starBackgroundColor;
+    final float cornerRadius;
+    final float starMargin;
+    final float strokeWidth;
+    final float starThicknessFactor;
+    final float rating;
+    final int starNum;
+    final boolean drawStrokeForEmptyStar;
+    final boolean drawStrokeForFullStar;
+    final boolean drawStrokeForHalfStar;
+    final boolean enableSelectRating;
+    /** see {@link RatingStarView#LAYER_POLICY_AUTO} */
+    final int layerPolicy;
+    /** steps per star, see {@link RatingStarView#GRANULARITY_HALF} etc. */
+    final int granularity;
+    final float lodLowStarHeight;
+    final float lodMediumStarHeight;
+    /** immutable, so it is shared by all the views using these attributes. */
+    final CornerPathEffect pathEffect;
+
+    private StarAttributes(TypedArray a) {
+        strokeColor = a.getColor(R.styleable.RatingStarView_rsv_strokeColor, DEFAULT_STROKE_COLOR);
+        starForegroundColor = a.getColor(R.styleable.RatingStarView_rsv_starForegroundColor, DEFAULT_STAR_FOREGROUND_COLOR);
+        starBackgroundColor = a.getColor(R.styleable.RatingStarView_rsv_starBackgroundColor, DEFAULT_STAR_BACKGROUND_COLOR);
+        cornerRadius = a.getDimension(R.styleable.RatingStarView_rsv_cornerRadius, DEFAULT_CORNER_RADIUS);
+        starMargin = a.getDimension(R.styleable.RatingStarView_rsv_starMargin, DEFAULT_STAR_MARGIN);
+        strokeWidth = a.getDimension(R.styleable.RatingStarView_rsv_strokeWidth, DEFAULT_STROKE_WIDTH);
+        starThicknessFactor = a.getFloat(R.styleable.RatingStarView_rsv_starThickness, StarModel.DEFAULT_THICKNESS);
+        rating = a.getFloat(R.styleable.RatingStarView_rsv_rating, 0f);
+        starNum = a.getInteger(R.styleable.RatingStarView_rsv_starNum, DEFAULT_STAR_NUM);
+        drawStrokeForEmptyStar = a.getBoolean(R.styleable.RatingStarView_rsv_drawStrokeForEmptyStar, true);
+        drawStrokeForFullStar = a.getBoolean(R.styleable.RatingStarView_rsv_drawStrokeForFullStar, false);
+        drawStrokeForHalfStar = a.getBoolean(R.styleable.RatingStarView_rsv_drawStrokeForHalfStar, true);
+        enableSelectRating = a.getBoolean(R.styleable.RatingStarView_rsv_enableSelectRating, false);
+        layerPolicy = a.getInt(R.styleable.RatingStarView_rsv_layerPolicy, RatingStarView.LAYER_POLICY_NONE);
+        boolean onlyHalfStar = a.getBoolean(R.styleable.RatingStarView_rsv_onlyHalfStar, true);
+        granularity = a.getInt(R.styleable.RatingStarView_rsv_granularity,
+                onlyHalfStar ? RatingStarView.GRANULARITY_HALF : RatingStarView.GRANULARITY_CONTINUOUS);
+        // level of detail is opt-in: strokes may be the only outline of an empty star.
+        lodLowStarHeight = a.getDimension(R.styleable.RatingStarView_rsv_lodLowStarHeight, 0);
+        lodMediumStarHeight = a.getDimension(R.styleable.RatingStarView_rsv_lodMediumStarHeight, 0);
+        pathEffect = new CornerPathEffect(cornerRadius);
+    }
+
+    /**
+     * Get the parsed attributes, from cache if possible. Safe to call from any thread.
+     *
+     * @param attrs the inflated attribute set, may be null.
+     * @param defStyle the defStyleAttr passed to the view constructor.
+     */
+    static StarAttributes obtain(Context context, AttributeSet attrs, int defStyle) {
+        if (!isCacheable(attrs)) {
+            return parse(context, attrs, defStyle, 0);
+        }
+
+        int styleRes = attrs == null ? 0 : attrs.getStyleAttribute();
+        return obtain(context, attrs, defStyle, styleRes);
+    }
+
+    /**
+     * Get the attributes of a style resource, shares the cache entries of views inflated with
+     * style="@style/..." and no inline rsv_* attribute. Safe to call from any thread.
+     *
+     * @param styleRes a style resource holding rsv_* items, or 0 for the theme defaults.
+     */
+    static StarAttributes obtain(Context context, int styleRes) {
+        return obtain(context, null, 0, styleRes);
+    }
+
+    private static StarAttributes obtain(Context context, AttributeSet attrs, int defStyle,
+                                         int styleRes) {
+        Resources.Theme theme = context.getTheme();
+        Configuration config = context.getResources().getConfiguration();
+        CacheKey key = new CacheKey(defStyle, styleRes, config);
+
+        synchronized (cache) {
+            Map<CacheKey, StarAttributes> themeCache = cache.get(theme);
+            if (themeCache != null) {
+                StarAttributes cached = themeCache.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+
+        // parse outside the lock, a concurrent duplicate parse is harmless.
+        // the style of attrs is resolved by obtainStyledAttributes itself.
+        StarAttributes parsed = parse(context, attrs, defStyle, attrs == null ? styleRes : 0);
+
+        synchronized (cache) {
+            Map<CacheKey, StarAttributes> themeCache = cache.get(theme);
+            if (themeCache == null) {
+                themeCache = new HashMap<>();
+                cache.put(theme, themeCache);
+            }
+            // the live Configuration may change later, so the stored key keeps a copy.
+            themeCache.put(new CacheKey(defStyle, styleRes, new Configuration(config)), parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Drop all the cached attributes, e.g. to measure the uncached inflation.
+     */
+    static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static StarAttributes parse(Context context, AttributeSet attrs, int defStyle,
+                                        int defStyleRes) {
+        final TypedArray a = context.obtainStyledAttributes(
+                attrs, R.styleable.RatingStarView, defStyle, defStyleRes);
+        try {
+            return new StarAttributes(a);
+        } finally {
+            a.recycle();
+        }
+    }
+
+    /**
+     * @return false if any rsv_* attribute is declared directly on the attribute set.
+     */
+    private static boolean isCacheable(AttributeSet attrs) {
+        if (attrs == null) return true;
+
+        int[] styleable = R.styleable.RatingStarView;
+        for (int i = 0, count = attrs.getAttributeCount(); i < count; i++) {
+            int nameRes = attrs.getAttributeNameResource(i);
+            for (int attr : styleable) {
+                if (attr == nameRes) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static final class CacheKey {
+        final int defStyle;
+        final int styleRes;
+        final Configuration config;
+
+        CacheKey(int defStyle, int styleRes, Configuration config) {
+            this.defStyle = defStyle;
+            this.styleRes = styleRes;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CacheKey)) return false;
+            CacheKey other = (CacheKey) o;
+            return defStyle == other.defStyle && styleRes == other.styleRes
+                    && config.equals(other.config);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * defStyle + styleRes) + config.hashCode();
+        }
+    }
+}
@@ -171,6 +171,13 @@ class StarModel {
         return new RectF(outerRect);
     }
 
+    /**
+     * Copy the outer rect into out, for drawing code which must not allocate.
+     */
+    public void getOuterRect(RectF out) {
+        out.set(outerRect);
+    }
+
     /**
      * Keep the star's outer bounds exactly.
      * NOTE: call this after any vertex value changed.
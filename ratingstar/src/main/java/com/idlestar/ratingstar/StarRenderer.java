@@ -0,0 +1,531 @@
+package com.idlestar.ratingstar;
+
+import android.graphics.Canvas;
+import android.graphics.CornerPathEffect;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.util.Log;
+
+import java.util.ArrayList;
+
+import static android.graphics.Canvas.CLIP_SAVE_FLAG;
+
+/**
+ * Lays out and draws a row of stars on any {@link Canvas}, shared by {@link RatingStarView} and
+ * {@link RatingStarBitmapRenderer} so a rating can be drawn without a View.
+ *
+ * NOTE: not thread safe, each instance must be used by one thread at a time.
+ */
+class StarRenderer {
+    private static final String TAG = "StarRenderer";
+    private static final byte FILL_EMPTY = 0;
+    private static final byte FILL_PARTIAL = 1;
+    private static final byte FILL_FULL = 2;
+
+    // region style, set directly by the owner
+    int starForegroundColor;
+    int strokeColor;
+    int starBackgroundColor;
+    /** used to make round smooth star horn */
+    CornerPathEffect pathEffect;
+    float starMargin;
+    float strokeWidth;
+    boolean drawStrokeForFullStar;
+    boolean drawStrokeForHalfStar;
+    boolean drawStrokeForEmptyStar;
+    float starThicknessFactor;
+    float lodLowStarHeight;
+    float lodMediumStarHeight;
+    // endregion
+
+    /** steps per star, set by {@link #setGranularity(int)} */
+    private int granularity;
+
+    private ArrayList<StarModel> starList;
+    /**
+     * real drawn star number.
+     */
+    private int starCount;
+    /** calculated value */
+    private float starWidth;
+    /** calculated value */
+    private float starHeight;
+    /** calculated value, by {@link #updateLevelOfDetail()} */
+    private int levelOfDetail = RatingStarView.LOD_FULL;
+    // region reused by every draw, so onDraw does not allocate.
+    private final Path path = new Path();
+    private final RectF starRect = new RectF();
+    // endregion
+    /**
+     * x of the fill edge for each step index, built by {@link #buildTables()}, null for
+     * {@link RatingStarView#GRANULARITY_CONTINUOUS}.
+     */
+    private float[] dividerTable;
+    /** fill state of star i at step index s is at [s * starCount + i]. */
+    private byte[] fillStateTable;
+    /** left of each star, for hit testing. */
+    private float[] starLeftTable;
+    /** created lazily at the first draw, see {@link #ensurePaint()} */
+    private Paint paint;
+
+    StarRenderer(StarAttributes a) {
+        strokeColor = a.strokeColor;
+        starForegroundColor = a.starForegroundColor;
+        starBackgroundColor = a.starBackgroundColor;
+        pathEffect = a.pathEffect;
+        starMargin = a.starMargin;
+        strokeWidth = a.strokeWidth;
+        starThicknessFactor = a.starThicknessFactor;
+        drawStrokeForEmptyStar = a.drawStrokeForEmptyStar;
+        drawStrokeForFullStar = a.drawStrokeForFullStar;
+        drawStrokeForHalfStar = a.drawStrokeForHalfStar;
+        granularity = a.granularity;
+        lodLowStarHeight = a.lodLowStarHeight;
+        lodMediumStarHeight = a.lodMediumStarHeight;
+    }
+
+    private void ensurePaint() {
+        if (paint == null) {
+            paint = new Paint();
+            paint.setFlags(Paint.ANTI_ALIAS_FLAG);
+            paint.setStrokeWidth(strokeWidth);
+        }
+    }
+
+    void setStrokeWidth(float width) {
+        strokeWidth = width;
+        if (paint != null) {
+            paint.setStrokeWidth(width);
+        }
+    }
+
+    /**
+     * @see StarModel#setThickness(float)
+     */
+    void setStarThickness(float thicknessFactor) {
+        starThicknessFactor = thicknessFactor;
+        if (starList == null) return;
+        for (StarModel star : starList) {
+            star.setThickness(thicknessFactor);
+        }
+    }
+
+    void moveStarsTo(int left, int top) {
+        if (starList == null) return;
+        for (StarModel star : starList) {
+            star.moveStarTo(left, top);
+        }
+        buildTables();
+    }
+
+    boolean hasStars() {
+        return starList != null;
+    }
+
+    float getStarWidth() {
+        return starWidth;
+    }
+
+    float getStarHeight() {
+        return starHeight;
+    }
+
+    /**
+     * @param granularity steps per star, one of the RatingStarView.GRANULARITY_* values.
+     */
+    void setGranularity(int granularity) {
+        switch (granularity) {
+            case RatingStarView.GRANULARITY_CONTINUOUS:
+            case RatingStarView.GRANULARITY_WHOLE:
+            case RatingStarView.GRANULARITY_HALF:
+            case RatingStarView.GRANULARITY_QUARTER:
+            case RatingStarView.GRANULARITY_TENTH:
+                break;
+            default:
+                throw new IllegalArgumentException("unknown granularity: " + granularity);
+        }
+
+        if (this.granularity != granularity) {
+            this.granularity = granularity;
+            buildTables();
+        }
+    }
+
+    int getGranularity() {
+        return granularity;
+    }
+
+    int getLevelOfDetail() {
+        return levelOfDetail;
+    }
+
+    void updateLevelOfDetail() {
+        if (starHeight < lodLowStarHeight) {
+            levelOfDetail = RatingStarView.LOD_LOW;
+        } else if (starHeight < lodMediumStarHeight) {
+            levelOfDetail = RatingStarView.LOD_MEDIUM;
+        } else {
+            levelOfDetail = RatingStarView.LOD_FULL;
+        }
+    }
+
+    /**
+     * Create all stars data, according to the contentWidth/contentHeight.
+     * @param left content left
+     * @param top content top
+     * @param starNum expected star number.
+     */
+    void layout(int left, int top, int contentWidth, int contentHeight, int starNum) {
+        // according to the View's height , make star height.
+        int starHeight = contentHeight;
+        if (contentHeight > contentWidth) {
+            starHeight = contentWidth;
+        }
+
+        if (starHeight <= 0) return;
+        float startWidth = StarModel.getStarWidth(starHeight);
+
+        // starCount * startWidth + (starCount - 1) * starMargin = contentWidth
+        int starCount = (int) ((contentWidth + starMargin) / (startWidth + starMargin));
+        if (starCount > starNum) {
+            starCount = starNum;
+        }
+
+        Log.d(TAG, "drawing starCount = " + starCount  + ", contentWidth = " + contentWidth
+                + ", startWidth = " + startWidth + ", starHeight = " + starHeight);
+
+        starList = new ArrayList<>(starCount);
+
+        for (int i = 0; i < starCount; i++) {
+            StarModel star = new StarModel(starThicknessFactor);
+            starList.add(star);
+            star.setDrawingOuterRect(left, top, starHeight);
+            left += startWidth + 0.5f + starMargin;
+        }
+
+        this.starCount = starCount;
+        this.starWidth = startWidth;
+        this.starHeight = starHeight;
+        buildTables();
+        updateLevelOfDetail();
+        Log.d(TAG, "levelOfDetail = " + levelOfDetail);
+    }
+
+    /**
+     * Precompute the divider x and the fill state of every star for each step index, so drawing
+     * a rating is only table lookups.
+     */
+    private void buildTables() {
+        if (starList == null) return;
+
+        starLeftTable = new float[starCount];
+        for (int i = 0; i < starCount; i++) {
+            starLeftTable[i] = starList.get(i).getOuterRect().left;
+        }
+
+        if (granularity == RatingStarView.GRANULARITY_CONTINUOUS) {
+            dividerTable = null;
+            fillStateTable = null;
+            return;
+        }
+
+        int steps = granularity;
+        int stepCount = starCount * steps + 1;
+        dividerTable = new float[stepCount];
+        fillStateTable = new byte[stepCount * starCount];
+
+        for (int step = 0; step < stepCount; step++) {
+            int partialStar = step / steps;
+            int stepInStar = step % steps;
+            if (stepInStar > 0) {
+                RectF r = starList.get(partialStar).getOuterRect();
+                dividerTable[step] = r.left + r.width() * stepInStar / steps;
+            }
+
+            for (int i = 0; i < starCount; i++) {
+                byte state;
+                if (i < partialStar) {
+                    state = FILL_FULL;
+                } else if (i == partialStar && stepInStar > 0) {
+                    state = FILL_PARTIAL;
+                } else {
+                    state = FILL_EMPTY;
+                }
+                fillStateTable[step * starCount + i] = state;
+            }
+        }
+    }
+
+    /**
+     * @see RatingSteps#getRatingKey
+     */
+    int getRatingKey(float rating, int starNum) {
+        return RatingSteps.getRatingKey(rating, starNum, granularity);
+    }
+
+    /**
+     * Round a {@link RatingStarView#GRANULARITY_CONTINUOUS} rating so its fill edge falls on a
+     * whole pixel column of the star. A partial star stays partial. Used to memoize continuous
+     * ratings, other granularities are returned as is.
+     */
+    float snapToPixels(float rating, int starNum) {
+        int columns = (int) starWidth;
+        if (granularity != RatingStarView.GRANULARITY_CONTINUOUS || columns < 2
+                || !(rating > 0 && rating < starNum)) {
+            return rating;
+        }
+
+        int whole = (int) rating;
+        float decimal = rating - whole;
+        if (decimal == 0) {
+            return rating;
+        }
+        int column = Math.max(1, Math.min(Math.round(decimal * columns), columns - 1));
+        return whole + (float) column / columns;
+    }
+
+    /**
+     * @return index of the star under x, or -1.
+     */
+    int hitTestStar(float x) {
+        if (starLeftTable == null || starCount == 0 || x < starLeftTable[0]) {
+            return -1;
+        }
+
+        // stars are laid out at integer lefts with a constant pitch.
+        float pitch = starCount > 1 ? starLeftTable[1] - starLeftTable[0] : starWidth;
+        int index = Math.min((int) ((x - starLeftTable[0]) / pitch), starCount - 1);
+        if (x <= starLeftTable[index] + starWidth) {
+            return index;
+        }
+        return -1;
+    }
+
+    /**
+     * @return x splitting the full and partial stars of rating from the empty ones, halfway in the
+     * margin so the stroke of either side is kept. 0 if all stars are empty,
+     * {@link Float#MAX_VALUE} if none is.
+     */
+    float getEmptyRowLeft(float rating) {
+        if (starLeftTable == null || starCount == 0) {
+            return 0;
+        }
+
+        int filled;
+        if (fillStateTable == null) {
+            filled = rating > 0 ? (int) Math.ceil(rating) : 0;
+        } else {
+            int step = RatingSteps.getStepIndex(rating, starCount, granularity);
+            filled = (step + granularity - 1) / granularity;
+        }
+
+        if (filled <= 0) {
+            return 0;
+        }
+        if (filled >= starCount) {
+            return Float.MAX_VALUE;
+        }
+        return (starLeftTable[filled - 1] + starWidth + starLeftTable[filled]) / 2;
+    }
+
+    void draw(Canvas canvas, float rating) {
+        drawStars(canvas, rating, true);
+    }
+
+    /**
+     * Draw all stars as empty ones, the static background row for {@link #drawForeground}.
+     */
+    void drawEmptyRow(Canvas canvas) {
+        drawStars(canvas, 0, true);
+    }
+
+    /**
+     * Draw only the full and partial stars, the same way {@link #draw} does. The row drawn by
+     * {@link #drawEmptyRow} must not be under them, see {@link #getEmptyRowLeft}.
+     */
+    void drawForeground(Canvas canvas, float rating) {
+        drawStars(canvas, rating, false);
+    }
+
+    private void drawStars(Canvas canvas, float rating, boolean drawEmptyStars) {
+        if (starList == null || starList.size() == 0) {
+            return;
+        }
+
+        ensurePaint();
+
+        if (fillStateTable == null) {
+            drawStarsContinuous(canvas, rating, drawEmptyStars);
+            return;
+        }
+
+        int step = Math.min(RatingSteps.getStepIndex(rating, starCount, granularity),
+                dividerTable.length - 1);
+        int base = step * starCount;
+        for (int i = 0; i < starCount; i++) {
+            switch (fillStateTable[base + i]) {
+                case FILL_FULL:
+                    drawFullStar(starList.get(i), canvas);
+                    break;
+                case FILL_PARTIAL:
+                    drawPartialStar(starList.get(i), canvas, dividerTable[step]);
+                    break;
+                default:
+                    if (!drawEmptyStars) return;
+                    drawEmptyStar(starList.get(i), canvas);
+                    break;
+            }
+        }
+    }
+
+    private void drawStarsContinuous(Canvas canvas, float rating, boolean drawEmptyStars) {
+        for (int i = 0; i < starList.size(); i++) {
+            if (!drawEmptyStars && rating <= i) {
+                break;
+            }
+
+            StarModel star = starList.get(i);
+            if (rating >= i + 1) {
+                drawFullStar(star, canvas);
+            } else {
+                float decimal = rating - i;
+                if (decimal > 0) {
+                    star.getOuterRect(starRect);
+                    drawPartialStar(star, canvas, starRect.left + starRect.width() * decimal);
+                } else {
+                    drawEmptyStar(star, canvas);
+                }
+            }
+        }
+    }
+
+    private void drawFullStar(StarModel star, Canvas canvas) {
+        drawSolidStar(star, canvas, starForegroundColor);
+        if (drawStrokeForFullStar) {
+            drawStarStroke(star, canvas);
+        }
+    }
+
+    private void drawEmptyStar(StarModel star, Canvas canvas) {
+        drawSolidStar(star, canvas, starBackgroundColor);
+        if (drawStrokeForEmptyStar) {
+            drawStarStroke(star, canvas);
+        }
+    }
+
+    /**
+     * @param dividerX the foreground is drawn at the left of it.
+     */
+    private void drawPartialStar(StarModel star, Canvas canvas, float dividerX) {
+        // layer 1
+        drawSolidStar(star, canvas, starBackgroundColor);
+
+        // layer 2, the plain polygon has no overlapping pieces, so clipping is enough.
+        RectF r = starRect;
+        star.getOuterRect(r);
+        if (levelOfDetail == RatingStarView.LOD_LOW) {
+            canvas.save();
+        } else {
+            canvas.saveLayerAlpha(r.left, r.top, r.right, r.bottom, 0xff, CLIP_SAVE_FLAG);
+        }
+        canvas.clipRect(r.left, r.top, dividerX, r.bottom);
+        drawSolidStar(star, canvas, starForegroundColor);
+        canvas.restore();
+
+        // layer 1
+        if (drawStrokeForHalfStar) {
+            drawStarStroke(star, canvas);
+        }
+    }
+
+    private void drawSolidStar(StarModel star, Canvas canvas, int fillColor) {
+        if (levelOfDetail == RatingStarView.LOD_LOW) {
+            drawPolygonStar(star, canvas, fillColor);
+            return;
+        }
+
+        paint.setStyle(Paint.Style.FILL_AND_STROKE);
+        paint.setColor(fillColor);
+        paint.setPathEffect(pathEffect);
+
+        VertexF prev = star.getVertex(1);
+        Path path = this.path;
+
+        for (int i = 0; i < 5; i++) {
+            path.rewind();
+            path.moveTo(prev.x, prev.y);
+
+            VertexF next = prev.next;
+
+            path.lineTo(next.x, next.y);
+            path.lineTo(next.next.x, next.next.y);
+            path.lineTo(next.next.x, next.next.y);
+            canvas.drawPath(path, paint);
+
+            prev = next.next;
+        }
+
+        // fill the middle hole. use +1.0 +1.5 because the path-API will leave 1px gap.
+        path.rewind();
+        prev = star.getVertex(1);
+        path.moveTo(prev.x - 1f, prev.y - 1f);
+        prev = prev.next.next;
+        path.lineTo(prev.x + 1.5f, prev.y - 0.5f);
+        prev = prev.next.next;
+        path.lineTo(prev.x + 1.5f, prev.y + 1f);
+        prev = prev.next.next;
+        path.lineTo(prev.x, prev.y + 1f);
+        prev = prev.next.next;
+        path.lineTo(prev.x - 1f, prev.y + 1f);
+
+        paint.setPathEffect(null);
+        canvas.drawPath(path, paint);
+    }
+
+    /**
+     * Fill the star's 10 vertexes as a single path, used by {@link RatingStarView#LOD_LOW}.
+     */
+    private void drawPolygonStar(StarModel star, Canvas canvas, int fillColor) {
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(fillColor);
+        paint.setPathEffect(null);
+
+        Path path = this.path;
+        path.rewind();
+
+        VertexF first = star.getVertex(0);
+        path.moveTo(first.x, first.y);
+        for (VertexF v = first.next; v != first; v = v.next) {
+            path.lineTo(v.x, v.y);
+        }
+        path.close();
+        canvas.drawPath(path, paint);
+    }
+
+    private void drawStarStroke(StarModel star, Canvas canvas) {
+        if (levelOfDetail != RatingStarView.LOD_FULL) {
+            return;
+        }
+
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setColor(strokeColor);
+        paint.setPathEffect(pathEffect);
+        VertexF prev = star.getVertex(1);
+        Path path = this.path;
+
+        for (int i = 0; i < 5; i++) {
+            path.rewind();
+            path.moveTo(prev.x, prev.y);
+
+            VertexF next = prev.next;
+
+            path.lineTo(next.x, next.y);
+            path.lineTo(next.next.x, next.next.y);
+            path.lineTo(next.next.x, next.next.y);
+
+            canvas.drawPath(path, paint);
+            prev = next.next;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.idlestar.ratingstar;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RatingAggregatorTest {
+
+    @Test
+    public void emptyAggregator() {
+        RatingAggregator aggregator = new RatingAggregator(5);
+        assertEquals(0, aggregator.getCount());
+        assertEquals(0f, aggregator.getMean(), 0f);
+        assertArrayEquals(new long[6], aggregator.getHistogram());
+    }
+
+    @Test
+    public void countMeanHistogram() {
+        RatingAggregator aggregator = new RatingAggregator(5);
+        aggregator.addVote(5);
+        aggregator.addVote(4);
+        aggregator.addVote(4);
+        aggregator.addVote(1);
+
+        assertEquals(4, aggregator.getCount());
+        assertEquals(3.5f, aggregator.getMean(), 0.0001f);
+        assertArrayEquals(new long[]{0, 1, 0, 0, 2, 1}, aggregator.getHistogram());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectVoteOutOfRange() {
+        new RatingAggregator(5).addVote(6);
+    }
+
+    @Test
+    public void concurrentVotesAreAllCounted() throws InterruptedException {
+        final int threadCount = 8;
+        final int votesPerThread = 100000;
+        final RatingAggregator aggregator = new RatingAggregator(5, 4);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+
+        for (int t = 0; t < threadCount; t++) {
+            final int stars = t % 6;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < votesPerThread; i++) {
+                        aggregator.addVote(stars);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // threads vote 0,1,2,3,4,5,0,1
+        long[] expected = new long[6];
+        long sum = 0;
+        for (int t = 0; t < threadCount; t++) {
+            expected[t % 6] += votesPerThread;
+            sum += (long) (t % 6) * votesPerThread;
+        }
+        long count = (long) threadCount * votesPerThread;
+
+        assertArrayEquals(expected, aggregator.getHistogram());
+        assertEquals(count, aggregator.getCount());
+        assertEquals((float) sum / count, aggregator.getMean(), 0.0001f);
+    }
+}
@@ -0,0 +1,84 @@
+package com.idlestar.ratingstar;
+
+import org.junit.Test;
+
+import static com.idlestar.ratingstar.RatingStarView.GRANULARITY_CONTINUOUS;
+import static com.idlestar.ratingstar.RatingStarView.GRANULARITY_HALF;
+import static com.idlestar.ratingstar.RatingStarView.GRANULARITY_QUARTER;
+import static com.idlestar.ratingstar.RatingStarView.GRANULARITY_TENTH;
+import static com.idlestar.ratingstar.RatingStarView.GRANULARITY_WHOLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class RatingStepsTest {
+
+    @Test
+    public void exactSteps() {
+        assertEquals(0, RatingSteps.getStepIndex(0f, 5, GRANULARITY_HALF));
+        assertEquals(3, RatingSteps.getStepIndex(1.5f, 5, GRANULARITY_HALF));
+        assertEquals(9, RatingSteps.getStepIndex(2.25f, 5, GRANULARITY_QUARTER));
+        assertEquals(23, RatingSteps.getStepIndex(2.3f, 5, GRANULARITY_TENTH));
+        assertEquals(3, RatingSteps.getStepIndex(3f, 5, GRANULARITY_WHOLE));
+    }
+
+    @Test
+    public void partialStarNeverRoundsToEmpty() {
+        assertEquals(1, RatingSteps.getStepIndex(0.01f, 5, GRANULARITY_HALF));
+        assertEquals(5, RatingSteps.getStepIndex(2.1f, 5, GRANULARITY_HALF));
+        assertEquals(9, RatingSteps.getStepIndex(2.05f, 5, GRANULARITY_QUARTER));
+        assertEquals(21, RatingSteps.getStepIndex(2.001f, 5, GRANULARITY_TENTH));
+    }
+
+    @Test
+    public void partialStarNeverRoundsToFull() {
+        assertEquals(5, RatingSteps.getStepIndex(2.9f, 5, GRANULARITY_HALF));
+        assertEquals(11, RatingSteps.getStepIndex(2.95f, 5, GRANULARITY_QUARTER));
+        assertEquals(29, RatingSteps.getStepIndex(2.999f, 5, GRANULARITY_TENTH));
+        assertEquals(9, RatingSteps.getStepIndex(4.99f, 5, GRANULARITY_HALF));
+    }
+
+    @Test
+    public void wholeRoundsToNearest() {
+        assertEquals(2, RatingSteps.getStepIndex(2.4f, 5, GRANULARITY_WHOLE));
+        assertEquals(3, RatingSteps.getStepIndex(2.5f, 5, GRANULARITY_WHOLE));
+        assertEquals(0, RatingSteps.getStepIndex(0.2f, 5, GRANULARITY_WHOLE));
+        assertEquals(5, RatingSteps.getStepIndex(4.9f, 5, GRANULARITY_WHOLE));
+    }
+
+    @Test
+    public void clampsToRange() {
+        assertEquals(0, RatingSteps.getStepIndex(-1f, 5, GRANULARITY_HALF));
+        assertEquals(10, RatingSteps.getStepIndex(5f, 5, GRANULARITY_HALF));
+        assertEquals(10, RatingSteps.getStepIndex(7f, 5, GRANULARITY_HALF));
+        assertEquals(12, RatingSteps.getStepIndex(Float.POSITIVE_INFINITY, 3, GRANULARITY_QUARTER));
+        assertEquals(0, RatingSteps.getStepIndex(Float.NEGATIVE_INFINITY, 3, GRANULARITY_QUARTER));
+    }
+
+    @Test
+    public void nanIsEmpty() {
+        assertEquals(0, RatingSteps.getStepIndex(Float.NaN, 5, GRANULARITY_HALF));
+        assertEquals(0, RatingSteps.getStepIndex(Float.NaN, 5, GRANULARITY_WHOLE));
+        assertEquals(RatingSteps.getRatingKey(0f, 5, GRANULARITY_CONTINUOUS),
+                RatingSteps.getRatingKey(Float.NaN, 5, GRANULARITY_CONTINUOUS));
+    }
+
+    @Test
+    public void steppedKeyIsStepIndex() {
+        assertEquals(RatingSteps.getRatingKey(2.2f, 5, GRANULARITY_HALF),
+                RatingSteps.getRatingKey(2.4f, 5, GRANULARITY_HALF));
+        assertNotEquals(RatingSteps.getRatingKey(2f, 5, GRANULARITY_HALF),
+                RatingSteps.getRatingKey(2.01f, 5, GRANULARITY_HALF));
+    }
+
+    @Test
+    public void continuousKeyIsClampedRating() {
+        assertEquals(RatingSteps.getRatingKey(0f, 5, GRANULARITY_CONTINUOUS),
+                RatingSteps.getRatingKey(-0f, 5, GRANULARITY_CONTINUOUS));
+        assertEquals(RatingSteps.getRatingKey(0f, 5, GRANULARITY_CONTINUOUS),
+                RatingSteps.getRatingKey(-2f, 5, GRANULARITY_CONTINUOUS));
+        assertEquals(RatingSteps.getRatingKey(5f, 5, GRANULARITY_CONTINUOUS),
+                RatingSteps.getRatingKey(9f, 5, GRANULARITY_CONTINUOUS));
+        assertNotEquals(RatingSteps.getRatingKey(2.3f, 5, GRANULARITY_CONTINUOUS),
+                RatingSteps.getRatingKey(2.31f, 5, GRANULARITY_CONTINUOUS));
+    }
+}